@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2025.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package labs.pm.data;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * {@code CatalogIndex} maps product attributes to product ids.
+ * <br>
+ * Each product added gets the next dense ordinal, and every indexed
+ * attribute value keeps a {@link ProductBitmap} of the ordinals having
+ * it: by {@link Rating}, by concrete type, by price in whole cents
+ * and, for {@link Food}, by best before date. Only the rating changes
+ * after a product is added, a review moves the ordinal between two
+ * rating bitmaps.
+ * <br>
+ * {@link #select(ProductQuery)} evaluates a query as bitmap operations.
+ * Name prefixes are not indexed and price ranges are looked up by
+ * whole cents, both select a superset of their matches, so callers
+ * check the products they resolve. The bitmaps are guarded by a read
+ * write lock, held only while they are updated or combined.
+ * <br>
+ * The ids of the foods discounted today, best before the current day,
+ * are kept in a precomputed set, replaced at each {@link #rollover}
+ * to a new day. {@link #compile(ProductQuery)} tests candidates against
+ * that set rather than the clock.
+ *
+ * @author bilal
+ **/
+final class CatalogIndex {
+
+    private static final Rating[] RATINGS = Rating.values();
+    private static final ProductBitmap NONE = new ProductBitmap();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock writeLock = lock.writeLock();
+    private final Lock readLock = lock.readLock();
+
+    private final Map<Integer, Integer> ordinals = new HashMap<>();
+    private int[] ids = new int[16];
+    private int count;
+
+    private final ProductBitmap all = new ProductBitmap();
+    private final ProductBitmap[] byRating = bitmaps(RATINGS.length);
+    private final Map<Class<? extends Product>, ProductBitmap> byType = new HashMap<>();
+    private final NavigableMap<Long, ProductBitmap> byPrice = new TreeMap<>();
+    private final NavigableMap<LocalDate, ProductBitmap> byBestBefore = new TreeMap<>();
+
+    private LocalDate today = LocalDate.now();
+    private volatile Set<Integer> discountedToday = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The ordinals a query selects and whether they are exactly its
+     * matches or a superset of them
+     */
+    private record Match(ProductBitmap ordinals, boolean exact) {
+    }
+
+    void add(Product product) {
+        try {
+            writeLock.lock();
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count << 1);
+            }
+            int ordinal = count++;
+            ids[ordinal] = product.getId();
+            ordinals.put(product.getId(), ordinal);
+            all.add(ordinal);
+            byRating[product.getRating().ordinal()].add(ordinal);
+            byPrice.computeIfAbsent(cents(product.getPrice()), price -> new ProductBitmap())
+                    .add(ordinal);
+            byType.computeIfAbsent(product.getClass(), type -> new ProductBitmap())
+                    .add(ordinal);
+            if (product instanceof Food food) {
+                byBestBefore.computeIfAbsent(food.getBestBefore(), date -> new ProductBitmap())
+                        .add(ordinal);
+                if (food.getBestBefore().isEqual(today)) {
+                    discountedToday.add(food.getId());
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Moves a re-rated product to its new rating
+     */
+    void replace(Product previous, Product product) {
+        if (previous.getRating() == product.getRating()) {
+            return;
+        }
+        try {
+            writeLock.lock();
+            int ordinal = ordinals.get(product.getId());
+            byRating[previous.getRating().ordinal()].remove(ordinal);
+            byRating[product.getRating().ordinal()].add(ordinal);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void clear() {
+        try {
+            writeLock.lock();
+            ordinals.clear();
+            count = 0;
+            all.clear();
+            Arrays.stream(byRating).forEach(ProductBitmap::clear);
+            byType.clear();
+            byPrice.clear();
+            byBestBefore.clear();
+            discountedToday.clear();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Makes {@code day} the current day and recomputes the foods
+     * discounted today from the best before index
+     */
+    void rollover(LocalDate day) {
+        try {
+            writeLock.lock();
+            Set<Integer> discounted = ConcurrentHashMap.newKeySet();
+            for (int ordinal : byBestBefore.getOrDefault(day, NONE).toArray()) {
+                discounted.add(ids[ordinal]);
+            }
+            today = day;
+            discountedToday = discounted;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    LocalDate getToday() {
+        try {
+            readLock.lock();
+            return today;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @return the ids of the foods best before the current day
+     */
+    Set<Integer> getDiscountedToday() {
+        return discountedToday;
+    }
+
+    /**
+     * Selects candidate ids for a query through the indexes, the
+     * candidates still have to be tested against the query
+     *
+     * @return the ids, or {@code null} when the indexes cannot narrow
+     * the query down from the whole catalog
+     */
+    int[] select(ProductQuery query) {
+        try {
+            readLock.lock();
+            ProductBitmap selected = evaluate(query).ordinals();
+            if (selected.cardinality() >= count) {
+                return null;
+            }
+            int[] selection = selected.toArray();
+            for (int i = 0; i < selection.length; i++) {
+                selection[i] = ids[selection[i]];
+            }
+            return selection;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Compiles a query into the predicate its candidates are checked
+     * with, discounted today criteria look the product up in the set of
+     * the current day instead of comparing its best before date to the
+     * clock
+     */
+    Predicate<Product> compile(ProductQuery query) {
+        return compile(query, discountedToday);
+    }
+
+    private static Predicate<Product> compile(ProductQuery query, Set<Integer> discounted) {
+        return switch (query) {
+            case ProductQuery.DiscountedToday() -> product -> discounted.contains(product.getId());
+            case ProductQuery.And(List<ProductQuery> terms) -> terms.stream()
+                    .map(term -> compile(term, discounted))
+                    .reduce(product -> true, Predicate::and);
+            case ProductQuery.Or(List<ProductQuery> terms) -> terms.stream()
+                    .map(term -> compile(term, discounted))
+                    .reduce(product -> false, Predicate::or);
+            case ProductQuery.Not(ProductQuery term) -> compile(term, discounted).negate();
+            default -> query;
+        };
+    }
+
+    private Match evaluate(ProductQuery query) {
+        return switch (query) {
+            case ProductQuery.RatingRange(Rating min, Rating max) -> new Match(
+                    union(IntStream.rangeClosed(min.ordinal(), max.ordinal())
+                            .mapToObj(rating -> byRating[rating])), true);
+            case ProductQuery.PriceRange(BigDecimal min, BigDecimal max) -> new Match(
+                    union(prices(min, max).values().stream()), false);
+            case ProductQuery.TypeIs(Class<? extends Product> type) -> new Match(
+                    byType.getOrDefault(type, NONE), true);
+            case ProductQuery.BestBeforeRange(LocalDate from, LocalDate to) -> new Match(
+                    from.isAfter(to)
+                            ? NONE
+                            : union(byBestBefore.subMap(from, true, to, true).values().stream()),
+                    true);
+            case ProductQuery.DiscountedToday() -> new Match(
+                    byBestBefore.getOrDefault(today, NONE), true);
+            case ProductQuery.NamePrefix(String prefix) -> new Match(all, false);
+            case ProductQuery.And(List<ProductQuery> terms) -> combine(terms, true);
+            case ProductQuery.Or(List<ProductQuery> terms) -> combine(terms, false);
+            case ProductQuery.Not(ProductQuery term) -> {
+                Match match = evaluate(term);
+                yield match.exact()
+                        ? new Match(all.andNot(match.ordinals()), true)
+                        : new Match(all, false);
+            }
+        };
+    }
+
+    /**
+     * Selects the ids of products priced from {@code min} to {@code max},
+     * either bound possibly {@code null}, in price order, grouped by
+     * whole cents. Prices within a group may
+     * differ below a cent and some products just outside the range may
+     * be selected, callers order each group and check the products.
+     *
+     * @return the ids of each price group, in ascending or descending
+     * price order
+     */
+    List<int[]> selectByPrice(BigDecimal min, BigDecimal max, boolean descending) {
+        try {
+            readLock.lock();
+            NavigableMap<Long, ProductBitmap> prices = prices(min, max);
+            List<int[]> groups = new ArrayList<>(prices.size());
+            for (ProductBitmap ordinals : (descending ? prices.descendingMap() : prices).values()) {
+                int[] group = ordinals.toArray();
+                for (int i = 0; i < group.length; i++) {
+                    group[i] = ids[group[i]];
+                }
+                groups.add(group);
+            }
+            return groups;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @param min the lower bound, or {@code null} for none
+     * @param max the upper bound, or {@code null} for none
+     */
+    private NavigableMap<Long, ProductBitmap> prices(BigDecimal min, BigDecimal max) {
+        long from = (min != null) ? cents(min) : Long.MIN_VALUE;
+        long to = (max != null) ? cents(max) : Long.MAX_VALUE;
+        return (from > to)
+                ? new TreeMap<>()
+                : byPrice.subMap(from, true, to, true);
+    }
+
+    private Match combine(Collection<ProductQuery> terms, boolean and) {
+        ProductBitmap ordinals = null;
+        boolean exact = true;
+        for (ProductQuery term : terms) {
+            Match match = evaluate(term);
+            ordinals = (ordinals == null) ? match.ordinals()
+                    : and ? ordinals.and(match.ordinals())
+                    : ordinals.or(match.ordinals());
+            exact &= match.exact();
+        }
+        return new Match((ordinals != null) ? ordinals : and ? all : NONE, exact);
+    }
+
+    private static ProductBitmap union(Stream<ProductBitmap> bitmaps) {
+        return bitmaps.reduce(new ProductBitmap(), ProductBitmap::or);
+    }
+
+    /**
+     * Rounds a price down to whole cents, so a price range spans the
+     * cents from those of its lower bound to those of its upper bound
+     */
+    private static long cents(BigDecimal price) {
+        return price.movePointRight(2)
+                .setScale(0, RoundingMode.FLOOR)
+                .max(BigDecimal.valueOf(Long.MIN_VALUE))
+                .min(BigDecimal.valueOf(Long.MAX_VALUE))
+                .longValue();
+    }
+
+    private static ProductBitmap[] bitmaps(int n) {
+        return Stream.generate(ProductBitmap::new)
+                .limit(n)
+                .toArray(ProductBitmap[]::new);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2025.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package labs.pm.data;
+
+/**
+ * {@code CatalogMode} selects how {@link ProductManager} guards the
+ * product catalog against concurrent structural changes.
+ * <br>
+ * The mode is read from the {@code catalog.mode} configuration
+ * property and can be overridden with the
+ * {@code labs.pm.catalog.mode} system property, so the modes can be
+ * benchmarked side by side.
+ *
+ * @author bilal
+ **/
+public enum CatalogMode {
+    /**
+     * Readers and writers share a
+     * {@link java.util.concurrent.locks.ReentrantReadWriteLock}
+     */
+    LOCKING,
+    /**
+     * Queries read optimistically through a
+     * {@link java.util.concurrent.locks.StampedLock}, validate the
+     * stamp and fall back to a pessimistic read lock
+     */
+    OPTIMISTIC,
+    /**
+     * The catalog is a persistent trie published through a volatile
+     * reference: queries and reviews take no catalog lock and see a
+     * consistent snapshot of the catalog, while writers publish new
+     * versions one at a time
+     */
+    SNAPSHOT
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2025.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package labs.pm.data;
+
+/**
+ * {@code IngestionMode} selects how {@link ProductManager} applies
+ * product creations and reviews.
+ * <br>
+ * The mode is read from the {@code ingestion.mode} configuration
+ * property and can be overridden with the
+ * {@code labs.pm.ingestion.mode} system property.
+ *
+ * @author bilal
+ **/
+public enum IngestionMode {
+    /**
+     * Each caller applies its own mutation under the catalog locks
+     */
+    DIRECT,
+    /**
+     * Mutations are enqueued into a bounded ring buffer and applied in
+     * batches by a single writer thread
+     */
+    PIPELINE
+}
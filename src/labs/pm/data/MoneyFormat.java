@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2025.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package labs.pm.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+/**
+ * {@code MoneyFormat} formats amounts in the currency of a locale.
+ * <br>
+ * Prefixes, suffixes, separators, grouping and fraction digits are
+ * taken once from the locale currency {@link NumberFormat}. Amounts are
+ * formatted as {@code long} values scaled to the currency fraction
+ * digits, straight into an {@link Appendable}, without allocating a
+ * {@link BigDecimal} or a {@link StringBuffer}. Amounts already kept in
+ * cents are scaled with {@link #centsToUnits(long)}, only other
+ * {@link BigDecimal} amounts go through {@link #toUnits(BigDecimal)}.
+ * Instances are immutable and safe to share across threads.
+ *
+ * @author bilal
+ **/
+final class MoneyFormat {
+
+    private final String positivePrefix;
+    private final String positiveSuffix;
+    private final String negativePrefix;
+    private final String negativeSuffix;
+    private final int fractionDigits;
+    private final long unit;
+    private final long centsMultiplier;
+    private final long centsDivisor;
+    private final int groupingSize;
+    private final char groupingSeparator;
+    private final char decimalSeparator;
+    private final char zeroDigit;
+
+    MoneyFormat(Locale locale) {
+        DecimalFormat format = (DecimalFormat) NumberFormat.getCurrencyInstance(locale);
+        DecimalFormatSymbols symbols = format.getDecimalFormatSymbols();
+        positivePrefix = format.getPositivePrefix();
+        positiveSuffix = format.getPositiveSuffix();
+        negativePrefix = format.getNegativePrefix();
+        negativeSuffix = format.getNegativeSuffix();
+        fractionDigits = format.getMaximumFractionDigits();
+        unit = BigDecimal.ONE.movePointRight(fractionDigits).longValueExact();
+        centsMultiplier = BigDecimal.ONE.movePointRight(Math.max(0, fractionDigits - 2)).longValueExact();
+        centsDivisor = BigDecimal.ONE.movePointRight(Math.max(0, 2 - fractionDigits)).longValueExact();
+        groupingSize = format.isGroupingUsed() ? format.getGroupingSize() : 0;
+        groupingSeparator = symbols.getMonetaryGroupingSeparator();
+        decimalSeparator = symbols.getMonetaryDecimalSeparator();
+        zeroDigit = symbols.getZeroDigit();
+    }
+
+    /**
+     * Scales an amount to the currency fraction digits, rounding half
+     * even like {@link NumberFormat}
+     *
+     * @return the amount in minor currency units
+     */
+    long toUnits(BigDecimal amount) {
+        return amount.setScale(fractionDigits, RoundingMode.HALF_EVEN)
+                .movePointRight(fractionDigits)
+                .longValueExact();
+    }
+
+    /**
+     * Scales an amount in cents to the currency fraction digits with
+     * {@code long} arithmetic, rounding half even like
+     * {@link #toUnits(BigDecimal)}
+     *
+     * @return the amount in minor currency units
+     */
+    long centsToUnits(long cents) {
+        long units = Math.floorDiv(cents, centsDivisor);
+        long remainder = Math.floorMod(cents, centsDivisor) * 2;
+        if (remainder > centsDivisor || (remainder == centsDivisor && (units & 1) != 0)) {
+            units++;
+        }
+        return Math.multiplyExact(units, centsMultiplier);
+    }
+
+    String format(long units) {
+        return format(units, new StringBuilder()).toString();
+    }
+
+    StringBuilder format(long units, StringBuilder out) {
+        try {
+            format(units, (Appendable) out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out;
+    }
+
+    void format(BigDecimal amount, Appendable out) throws IOException {
+        format(toUnits(amount), out);
+    }
+
+    void format(long units, Appendable out) throws IOException {
+        boolean negative = units < 0;
+        long integer = Math.abs(units / unit);
+        long fraction = Math.abs(units % unit);
+
+        out.append(negative ? negativePrefix : positivePrefix);
+        long power = 1;
+        int digits = 1;
+        while (power <= integer / 10) {
+            power *= 10;
+            digits++;
+        }
+        for (; power > 0; power /= 10, digits--) {
+            out.append((char) (zeroDigit + integer / power % 10));
+            if (groupingSize > 0 && digits > 1 && (digits - 1) % groupingSize == 0) {
+                out.append(groupingSeparator);
+            }
+        }
+        if (fractionDigits > 0) {
+            out.append(decimalSeparator);
+            for (long place = unit / 10; place > 0; place /= 10) {
+                out.append((char) (zeroDigit + fraction / place % 10));
+            }
+        }
+        out.append(negative ? negativeSuffix : positiveSuffix);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2025.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package labs.pm.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@code MutationPipeline} applies catalog mutations on a single
+ * writer thread.
+ * <br>
+ * Callers enqueue mutations into a bounded ring buffer and block only
+ * while it is full. The writer drains every pending mutation and applies
+ * the batch holding the catalog write lock once, and only when the batch
+ * contains a structural change. A mutation that throws, even an
+ * {@link Error}, only fails its own result, never the writer thread.
+ * Results are completed off the writer thread, so stages depending on
+ * them may submit further mutations and wait for them.
+ *
+ * @author bilal
+ **/
+class MutationPipeline {
+
+    private record Mutation<T>(boolean structural,
+                               Callable<T> action,
+                               CompletableFuture<T> result) {
+    }
+
+    /**
+     * The outcome of a mutation that threw, kept apart from results
+     */
+    private record Failure(Throwable cause) {
+    }
+
+    private static final Logger logger =
+            Logger.getLogger(MutationPipeline.class.getName());
+
+    private final BlockingQueue<Mutation<?>> buffer;
+    private final Lock writeLock;
+    private final List<Mutation<?>> batch;
+    private final List<Object> outcomes;
+
+    MutationPipeline(int capacity, Lock writeLock) {
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.writeLock = writeLock;
+        this.batch = new ArrayList<>(capacity);
+        this.outcomes = new ArrayList<>(capacity);
+        Thread writer = new Thread(this::applyAll, "product-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Enqueues a mutation for the writer thread
+     *
+     * @param structural whether the mutation adds products to the catalog
+     * @return the result of the mutation once applied
+     */
+    <T> CompletableFuture<T> submit(boolean structural, Callable<T> action) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            buffer.put(new Mutation<>(structural, action, result));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private void applyAll() {
+        try {
+            while (true) {
+                batch.add(buffer.take());
+                buffer.drainTo(batch);
+                apply();
+                complete();
+                batch.clear();
+                outcomes.clear();
+            }
+        } catch (InterruptedException e) {
+            logger.log(Level.SEVERE, "Product writer interrupted", e);
+        }
+    }
+
+    private void apply() {
+        boolean structural = batch.stream().anyMatch(Mutation::structural);
+        try {
+            if (structural) {
+                writeLock.lock();
+            }
+            for (Mutation<?> mutation : batch) {
+                try {
+                    outcomes.add(mutation.action().call());
+                } catch (Throwable e) {
+                    outcomes.add(new Failure(e));
+                }
+            }
+        } finally {
+            if (structural) {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Completes the batch results once the write lock is released, each
+     * on the default executor of its result, so dependent stages neither
+     * hold the lock nor run on the writer thread, where a stage waiting
+     * for another mutation would wait forever
+     */
+    @SuppressWarnings("unchecked")
+    private void complete() {
+        for (int i = 0; i < batch.size(); i++) {
+            CompletableFuture<Object> result =
+                    (CompletableFuture<Object>) batch.get(i).result();
+            Object outcome = outcomes.get(i);
+            result.defaultExecutor().execute(() -> {
+                if (outcome instanceof Failure failure) {
+                    result.completeExceptionally(failure.cause());
+                } else {
+                    result.complete(outcome);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2025.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package labs.pm.data;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@code PersistentProductIndex} maps product ids to values using an
+ * immutable hash array mapped trie published through a volatile
+ * reference.
+ * <br>
+ * Readers take no lock, they read the current version once and always
+ * see a consistent snapshot. Writers, serialized by the
+ * {@link ProductManager} write lock, build a new version that shares
+ * every untouched node with the previous one.
+ *
+ * @author bilal
+ **/
+class PersistentProductIndex<V> implements ProductStore<V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private record Version(Node root, int size) {
+    }
+
+    private record Leaf(int hash, int id, Object value) {
+    }
+
+    /**
+     * Trie node holding a {@link Leaf} or a child {@code Node} in each
+     * slot, the bitmap tells which of the 32 branches are present
+     */
+    private record Node(int bitmap, Object[] slots) {
+    }
+
+    private static final Version EMPTY = new Version(new Node(0, new Object[0]), 0);
+
+    private volatile Version version = EMPTY;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(int id) {
+        int hash = ProductIndex.mix(id);
+        Node node = version.root();
+        for (int shift = 0; ; shift += BITS) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((node.bitmap() & bit) == 0) {
+                return null;
+            }
+            Object slot = node.slots()[Integer.bitCount(node.bitmap() & (bit - 1))];
+            if (slot instanceof Leaf leaf) {
+                return (leaf.id() == id) ? (V) leaf.value() : null;
+            }
+            node = (Node) slot;
+        }
+    }
+
+    @Override
+    public V put(int id, V value) {
+        Version current = version;
+        V previous = get(id);
+        Node root = put(current.root(), 0, new Leaf(ProductIndex.mix(id), id, value));
+        version = new Version(root, (previous == null) ? current.size() + 1 : current.size());
+        return previous;
+    }
+
+    @Override
+    public Stream<V> values() {
+        Version current = version;
+        return StreamSupport.stream(
+                Spliterators.spliterator(new Values<V>(current.root()), current.size(),
+                        Spliterator.NONNULL | Spliterator.IMMUTABLE),
+                false);
+    }
+
+    @Override
+    public int size() {
+        return version.size();
+    }
+
+    @Override
+    public void clear() {
+        version = EMPTY;
+    }
+
+    private static Node put(Node node, int shift, Leaf leaf) {
+        int bit = 1 << ((leaf.hash() >>> shift) & MASK);
+        int index = Integer.bitCount(node.bitmap() & (bit - 1));
+        Object[] slots = node.slots();
+        if ((node.bitmap() & bit) == 0) {
+            Object[] copy = new Object[slots.length + 1];
+            System.arraycopy(slots, 0, copy, 0, index);
+            copy[index] = leaf;
+            System.arraycopy(slots, index, copy, index + 1, slots.length - index);
+            return new Node(node.bitmap() | bit, copy);
+        }
+        Object slot = slots[index];
+        Object[] copy = slots.clone();
+        if (slot instanceof Node child) {
+            copy[index] = put(child, shift + BITS, leaf);
+        } else if (((Leaf) slot).id() == leaf.id()) {
+            copy[index] = leaf;
+        } else {
+            copy[index] = merge((Leaf) slot, leaf, shift + BITS);
+        }
+        return new Node(node.bitmap(), copy);
+    }
+
+    /**
+     * Builds the subtree holding two leaves whose hashes are equal up to
+     * the given shift, product ids never collide since the hash mix is
+     * a bijection
+     */
+    private static Node merge(Leaf first, Leaf second, int shift) {
+        int firstBranch = (first.hash() >>> shift) & MASK;
+        int secondBranch = (second.hash() >>> shift) & MASK;
+        if (firstBranch == secondBranch) {
+            return new Node(1 << firstBranch,
+                    new Object[]{merge(first, second, shift + BITS)});
+        }
+        return new Node((1 << firstBranch) | (1 << secondBranch),
+                (firstBranch < secondBranch)
+                        ? new Object[]{first, second}
+                        : new Object[]{second, first});
+    }
+
+    /**
+     * Depth-first iteration over the leaves of one version
+     */
+    private static class Values<V> implements Iterator<V> {
+        private final Node[] nodes = new Node[32 / BITS + 2];
+        private final int[] positions = new int[nodes.length];
+        private int depth;
+        private Leaf next;
+
+        private Values(Node root) {
+            nodes[0] = root;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                Node node = nodes[depth];
+                if (positions[depth] == node.slots().length) {
+                    depth--;
+                    continue;
+                }
+                Object slot = node.slots()[positions[depth]++];
+                if (slot instanceof Leaf leaf) {
+                    next = leaf;
+                    return;
+                }
+                depth++;
+                nodes[depth] = (Node) slot;
+                positions[depth] = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            V value = (V) next.value();
+            advance();
+            return value;
+        }
+    }
+}
@@ -18,6 +18,8 @@
 
 package labs.pm.data;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -44,6 +46,14 @@ public sealed abstract class Product implements Rateable<Product>, Serializable
     private final BigDecimal price;
     private Rating rating;
 
+    /**
+     * The price in whole cents, or {@link #NO_CENTS} when the price has
+     * finer digits or does not fit, derived from the price
+     */
+    private transient long priceCents;
+
+    static final long NO_CENTS = Long.MIN_VALUE;
+
     /**
      * A constant that defines a
      * {@link java.math.BigDecimal BigDecimal} value of the discount rate
@@ -57,6 +67,7 @@ public sealed abstract class Product implements Rateable<Product>, Serializable
         this.name = name;
         this.price = price;
         this.rating = rating;
+        this.priceCents = cents(price);
     }
 
     public int getId() {
@@ -67,6 +78,24 @@ public sealed abstract class Product implements Rateable<Product>, Serializable
         return price;
     }
 
+    /**
+     * @return the price in whole cents, or {@link #NO_CENTS}
+     */
+    long getPriceCents() {
+        return priceCents;
+    }
+
+    private static long cents(BigDecimal price) {
+        return (price.scale() <= 2 && price.precision() - price.scale() <= 16)
+                ? price.movePointRight(2).longValueExact()
+                : NO_CENTS;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        priceCents = cents(price);
+    }
+
     public String getName() {
         return name;
     }
@@ -79,6 +108,14 @@ public sealed abstract class Product implements Rateable<Product>, Serializable
      * value of the discount
      */
     public BigDecimal getDiscount() {
+        return getFullDiscount();
+    }
+
+    /**
+     * @return the discount at the {@link DISCOUNT_RATE discount rate},
+     * whether or not the product is discounted now
+     */
+    final BigDecimal getFullDiscount() {
         return price.multiply(DISCOUNT_RATE).setScale(2, HALF_UP);
     }
 
@@ -0,0 +1,366 @@
+/*
+ * Copyright (c) 2025.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package labs.pm.data;
+
+import java.util.Arrays;
+
+/**
+ * {@code ProductBitmap} is a compressed set of non-negative ints.
+ * <br>
+ * Following the Roaring layout, values are split by their high 16 bits
+ * into containers kept in key order. A container holds its low 16 bits
+ * as a sorted {@code char[]} while sparse, and as a 65536 bit
+ * {@code long[]} once it exceeds {@value #ARRAY_LIMIT} values, so
+ * {@link #and(ProductBitmap) and}, {@link #or(ProductBitmap) or} and
+ * {@link #andNot(ProductBitmap) andNot} combine containers key by key.
+ * <br>
+ * Bitmaps are not thread safe, operations return new bitmaps that
+ * share nothing with their operands.
+ *
+ * @author bilal
+ **/
+final class ProductBitmap {
+
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int WORDS = 1 << 10;
+
+    private char[] keys = new char[0];
+    private Container[] containers = new Container[0];
+    private int size;
+
+    void add(int value) {
+        char key = (char) (value >>> 16);
+        int i = Arrays.binarySearch(keys, 0, size, key);
+        if (i < 0) {
+            i = -i - 1;
+            insert(i, key, new Container());
+        }
+        containers[i].add((char) value);
+    }
+
+    void remove(int value) {
+        int i = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+        if (i >= 0) {
+            containers[i].remove((char) value);
+            if (containers[i].cardinality == 0) {
+                System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+                System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+                containers[--size] = null;
+            }
+        }
+    }
+
+    boolean contains(int value) {
+        int i = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+        return i >= 0 && containers[i].contains((char) value);
+    }
+
+    int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality;
+        }
+        return cardinality;
+    }
+
+    void clear() {
+        keys = new char[0];
+        containers = new Container[0];
+        size = 0;
+    }
+
+    /**
+     * @return the values in ascending order
+     */
+    int[] toArray() {
+        int[] values = new int[cardinality()];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            n = containers[i].copyTo(keys[i] << 16, values, n);
+        }
+        return values;
+    }
+
+    ProductBitmap and(ProductBitmap other) {
+        ProductBitmap result = new ProductBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], Container.and(containers[i], other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    ProductBitmap or(ProductBitmap other) {
+        ProductBitmap result = new ProductBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i].copy());
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.append(keys[i], Container.or(containers[i], other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    ProductBitmap andNot(ProductBitmap other) {
+        ProductBitmap result = new ProductBitmap();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            result.append(keys[i], (j < other.size && other.keys[j] == keys[i])
+                    ? Container.andNot(containers[i], other.containers[j])
+                    : containers[i].copy());
+        }
+        return result;
+    }
+
+    private void append(char key, Container container) {
+        if (container != null) {
+            insert(size, key, container);
+        }
+    }
+
+    private void insert(int i, char key, Container container) {
+        if (size == keys.length) {
+            int capacity = Math.max(4, size << 1);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = container;
+        size++;
+    }
+
+    /**
+     * The low 16 bits of the values sharing one key, a sorted array
+     * while {@code words} is {@code null}, a bitmap otherwise
+     */
+    private static final class Container {
+
+        private char[] values = new char[4];
+        private long[] words;
+        private int cardinality;
+
+        void add(char value) {
+            if (words != null) {
+                long bit = 1L << value;
+                if ((words[value >>> 6] & bit) == 0) {
+                    words[value >>> 6] |= bit;
+                    cardinality++;
+                }
+                return;
+            }
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0) {
+                return;
+            }
+            if (cardinality == ARRAY_LIMIT) {
+                words = toWords();
+                values = null;
+                add(value);
+                return;
+            }
+            i = -i - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, cardinality << 1));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = value;
+            cardinality++;
+        }
+
+        void remove(char value) {
+            if (words != null) {
+                long bit = 1L << value;
+                if ((words[value >>> 6] & bit) != 0) {
+                    words[value >>> 6] &= ~bit;
+                    if (--cardinality <= ARRAY_LIMIT) {
+                        values = toValues(words, cardinality);
+                        words = null;
+                    }
+                }
+                return;
+            }
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0) {
+                System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+                cardinality--;
+            }
+        }
+
+        boolean contains(char value) {
+            return (words != null)
+                    ? (words[value >>> 6] & (1L << value)) != 0
+                    : Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        int copyTo(int high, int[] out, int n) {
+            if (words == null) {
+                for (int i = 0; i < cardinality; i++) {
+                    out[n++] = high | values[i];
+                }
+                return n;
+            }
+            for (int w = 0; w < WORDS; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    out[n++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+                }
+            }
+            return n;
+        }
+
+        Container copy() {
+            Container copy = new Container();
+            copy.values = (values != null) ? values.clone() : null;
+            copy.words = (words != null) ? words.clone() : null;
+            copy.cardinality = cardinality;
+            return copy;
+        }
+
+        private long[] toWords() {
+            if (words != null) {
+                return words.clone();
+            }
+            long[] bits = new long[WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                bits[values[i] >>> 6] |= 1L << values[i];
+            }
+            return bits;
+        }
+
+        static Container and(Container a, Container b) {
+            if (a.words != null && b.words != null) {
+                long[] bits = a.toWords();
+                for (int w = 0; w < WORDS; w++) {
+                    bits[w] &= b.words[w];
+                }
+                return of(bits);
+            }
+            Container sparse = (a.words == null) ? a : b;
+            Container other = (sparse == a) ? b : a;
+            Container result = new Container();
+            for (int i = 0; i < sparse.cardinality; i++) {
+                if (other.contains(sparse.values[i])) {
+                    result.add(sparse.values[i]);
+                }
+            }
+            return (result.cardinality > 0) ? result : null;
+        }
+
+        static Container or(Container a, Container b) {
+            if (a.words == null && b.words == null
+                    && a.cardinality + b.cardinality <= ARRAY_LIMIT) {
+                Container result = a.copy();
+                for (int i = 0; i < b.cardinality; i++) {
+                    result.add(b.values[i]);
+                }
+                return result;
+            }
+            long[] bits = a.toWords();
+            if (b.words != null) {
+                for (int w = 0; w < WORDS; w++) {
+                    bits[w] |= b.words[w];
+                }
+            } else {
+                for (int i = 0; i < b.cardinality; i++) {
+                    bits[b.values[i] >>> 6] |= 1L << b.values[i];
+                }
+            }
+            return of(bits);
+        }
+
+        static Container andNot(Container a, Container b) {
+            if (a.words == null) {
+                Container result = new Container();
+                for (int i = 0; i < a.cardinality; i++) {
+                    if (!b.contains(a.values[i])) {
+                        result.add(a.values[i]);
+                    }
+                }
+                return (result.cardinality > 0) ? result : null;
+            }
+            long[] bits = a.toWords();
+            if (b.words != null) {
+                for (int w = 0; w < WORDS; w++) {
+                    bits[w] &= ~b.words[w];
+                }
+            } else {
+                for (int i = 0; i < b.cardinality; i++) {
+                    bits[b.values[i] >>> 6] &= ~(1L << b.values[i]);
+                }
+            }
+            return of(bits);
+        }
+
+        /**
+         * @return a container holding the bits, or {@code null} when
+         * none is set
+         */
+        private static Container of(long[] bits) {
+            int cardinality = 0;
+            for (long word : bits) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality == 0) {
+                return null;
+            }
+            Container container = new Container();
+            container.cardinality = cardinality;
+            if (cardinality <= ARRAY_LIMIT) {
+                container.values = toValues(bits, cardinality);
+            } else {
+                container.values = null;
+                container.words = bits;
+            }
+            return container;
+        }
+
+        private static char[] toValues(long[] bits, int cardinality) {
+            char[] values = new char[Math.max(4, cardinality)];
+            int n = 0;
+            for (int w = 0; w < WORDS; w++) {
+                for (long word = bits[w]; word != 0; word &= word - 1) {
+                    values[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                }
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2025.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package labs.pm.data;
+
+import java.util.Collection;
+
+/**
+ * {@code ProductEntry} is the catalog slot of a single product.
+ * <br>
+ * It holds the product reviews, and publishes the current
+ * {@link Product} through a volatile slot that is swapped only when a
+ * review changes the product rating. Every review bumps the entry
+ * version.
+ * Reviews are added while holding the product review lock stripe,
+ * products share an empty {@link ReviewList} until their first review.
+ *
+ * @author bilal
+ **/
+final class ProductEntry {
+
+    private static final ReviewList NO_REVIEWS = new ReviewList();
+
+    private volatile Product product;
+    private ReviewList reviews = NO_REVIEWS;
+    private int version;
+
+    ProductEntry(Product product) {
+        this.product = product;
+    }
+
+    private ProductEntry(Product product, ReviewList reviews, int version) {
+        this.product = product;
+        this.reviews = reviews;
+        this.version = version;
+    }
+
+    ProductEntry(Product product, Collection<Review> reviews) {
+        this(product);
+        if (!reviews.isEmpty()) {
+            mutableReviews().addAll(reviews);
+        }
+    }
+
+    Product getProduct() {
+        return product;
+    }
+
+    ReviewList getReviews() {
+        return reviews;
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * Captures the product together with its current reviews, callers
+     * hold the product review lock stripe
+     *
+     * @return an immutable copy of this entry
+     */
+    ProductEntry snapshot() {
+        return new ProductEntry(product, reviews.snapshot(), version);
+    }
+
+    /**
+     * Adds a review and updates the product rating in place
+     *
+     * @return the product carrying the updated rating
+     */
+    Product review(Rating rating, String comments) {
+        mutableReviews().add(rating, comments);
+        return applyRating();
+    }
+
+    /**
+     * Adds a batch of reviews and recomputes the product rating once
+     *
+     * @return the product carrying the updated rating
+     */
+    Product review(Collection<Review> batch) {
+        mutableReviews().addAll(batch);
+        return applyRating();
+    }
+
+    private ReviewList mutableReviews() {
+        if (reviews == NO_REVIEWS) {
+            reviews = new ReviewList();
+        }
+        return reviews;
+    }
+
+    private Product applyRating() {
+        version++;
+        Rating newRating = reviews.getRating();
+        Product current = product;
+        if (current.getRating() != newRating) {
+            current = current.applyRating(newRating);
+            product = current;
+        }
+        return current;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2025.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package labs.pm.data;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * {@code ProductIndex} maps product ids to values using an
+ * open-addressing table with linear probing over primitive
+ * {@code int} keys, so lookups are constant time and never box the id.
+ * <br>
+ * The index is not thread-safe, callers guard it with the
+ * {@link ProductManager} locks.
+ *
+ * @author bilal
+ **/
+class ProductIndex<V> implements ProductStore<V> {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    ProductIndex() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    ProductIndex(int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        keys = new int[capacity];
+        values = new Object[capacity];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(int id) {
+        int[] keys = this.keys;
+        Object[] values = this.values;
+        int mask = keys.length - 1;
+        for (int i = mix(id) & mask; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == id) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(int id, V value) {
+        int mask = keys.length - 1;
+        int i = mix(id) & mask;
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == id) {
+                V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+        }
+        keys[i] = id;
+        values[i] = value;
+        if (++size * 2 > keys.length) {
+            resize(keys.length << 1);
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Stream<V> values() {
+        return Arrays.stream(values)
+                .filter(Objects::nonNull)
+                .map(value -> (V) value);
+    }
+
+    @Override
+    public void ensureCapacity(int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        if (capacity > keys.length) {
+            resize(capacity);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] newKeys = new int[capacity];
+        Object[] newValues = new Object[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] != null) {
+                int i = mix(oldKeys[j]) & mask;
+                while (newValues[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                newKeys[i] = oldKeys[j];
+                newValues[i] = oldValues[j];
+            }
+        }
+        values = newValues;
+        keys = newKeys;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        return Integer.highestOneBit(
+                Math.max(DEFAULT_CAPACITY, expectedSize * 2) - 1) << 1;
+    }
+
+    static int mix(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -20,46 +20,123 @@ package labs.pm.data;
 
 import java.io.*;
 import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.text.MessageFormat;
-import java.text.NumberFormat;
 import java.text.ParseException;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.time.format.FormatStyle;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * @author bilal
  **/
 public class ProductManager {
 
-    private Map<Product, List<Review>> products = new HashMap<>();
-    private final ReentrantReadWriteLock lock =
-            new ReentrantReadWriteLock();
+    private final ResourceBundle config =
+            ResourceBundle.getBundle("labs.pm.data.config");
+
+    private final CatalogMode catalogMode =
+            CatalogMode.valueOf(System.getProperty("labs.pm.catalog.mode",
+                    config.getString("catalog.mode")));
+    private final ProductStore<ProductEntry> products =
+            (catalogMode == CatalogMode.SNAPSHOT)
+                    ? new PersistentProductIndex<>()
+                    : new ProductIndex<>();
+    private final StampedLock stampedLock = new StampedLock();
+    private final ReadWriteLock lock = switch (catalogMode) {
+        case LOCKING -> new ReentrantReadWriteLock();
+        case OPTIMISTIC -> stampedLock.asReadWriteLock();
+        case SNAPSHOT -> new SnapshotLock();
+    };
     private final Lock writeLock = lock.writeLock();
     private final Lock readLock = lock.readLock();
 
-    private final ResourceBundle config =
-            ResourceBundle.getBundle("labs.pm.data.config");
+    private final IngestionMode ingestionMode =
+            IngestionMode.valueOf(System.getProperty("labs.pm.ingestion.mode",
+                    config.getString("ingestion.mode")));
+    private final MutationPipeline pipeline =
+            (ingestionMode == IngestionMode.PIPELINE)
+                    ? new MutationPipeline(
+                    Integer.parseInt(config.getString("ingestion.buffer.size")),
+                    writeLock)
+                    : null;
+
+    /**
+     * Lock stripes guarding product reviews, selected by product id.
+     * <br>
+     * Review operations hold the read lock, so they only exclude
+     * structural changes, plus the stripe of the reviewed product
+     */
+    private static final int REVIEW_LOCK_STRIPES = 64;
+    private final Lock[] reviewLocks =
+            Stream.generate(ReentrantLock::new)
+                    .limit(REVIEW_LOCK_STRIPES)
+                    .toArray(Lock[]::new);
+
+    /**
+     * Registered sort orders by name, each maintained as a
+     * {@link SortedView} as products are added and reviewed
+     */
+    private final Map<String, SortedView> sortedViews = new ConcurrentHashMap<>();
+
+    private final CatalogIndex catalogIndex = new CatalogIndex();
+
+    /**
+     * Rolls the catalog index over to the new day at each local
+     * midnight, so foods discounted today are never looked up by date
+     */
+    private final ScheduledExecutorService rolloverScheduler =
+            Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread rollover = new Thread(task, "discount-rollover");
+                rollover.setDaemon(true);
+                return rollover;
+            });
+
     private final MessageFormat reviewFormat =
             new MessageFormat(config.getString("review.data.format"));
     private final MessageFormat productFormat =
             new MessageFormat(config.getString("product.data.format"));
 
+    private static final int OUTPUT_BUFFER_SIZE = 8192;
+
     private final Path reportsFolder =
             Path.of(config.getString("reports.folder"));
+    private final ReportCache reportCache =
+            new ReportCache(Integer.parseInt(config.getString("report.cache.size")));
+    private final ReportMode reportMode =
+            ReportMode.valueOf(System.getProperty("labs.pm.report.mode",
+                    config.getString("report.mode")));
+    private final ReportStore reportStore =
+            new ReportStore(reportsFolder.resolve(config.getString("report.store.folder")));
     private final Path dataFolder =
             Path.of(config.getString("data.folder"));
     private final Path tempFolder =
@@ -78,6 +155,28 @@ public class ProductManager {
 
     private ProductManager() {
         loadAllData();
+        scheduleRollover();
+    }
+
+    /**
+     * Schedules the next rollover at local midnight, a rollover that
+     * fires early keeps the current day and schedules again, as does
+     * a rollover that fails
+     */
+    private void scheduleRollover() {
+        ZonedDateTime now = ZonedDateTime.now();
+        ZonedDateTime midnight = now.toLocalDate().plusDays(1).atStartOfDay(now.getZone());
+        rolloverScheduler.schedule(() -> {
+                    try {
+                        catalogIndex.rollover(LocalDate.now());
+                    } catch (RuntimeException e) {
+                        logger.log(Level.SEVERE,
+                                "Error rolling over discounts " + e.getMessage(), e);
+                    } finally {
+                        scheduleRollover();
+                    }
+                },
+                Duration.between(now, midnight).toMillis(), TimeUnit.MILLISECONDS);
     }
 
     public ResourceFormatter changeLocale(String languageTag) {
@@ -92,13 +191,32 @@ public class ProductManager {
         return formatters.keySet();
     }
 
+    public CatalogMode getCatalogMode() {
+        return catalogMode;
+    }
+
+    public IngestionMode getIngestionMode() {
+        return ingestionMode;
+    }
+
+    public ReportMode getReportMode() {
+        return reportMode;
+    }
+
+    public ReportCacheStats getReportCacheStats() {
+        return reportCache.getStats();
+    }
+
     public Product createProduct(int id, String name,
                                  BigDecimal price, Rating rating, LocalDate bestBefore) {
+        if (pipeline != null) {
+            return await(submitProduct(id, name, price, rating, bestBefore),
+                    "Error adding product ");
+        }
         Product product = null;
         try {
             writeLock.lock();
-            product = new Food(id, name, price, rating, bestBefore);
-            products.putIfAbsent(product, new ArrayList<>());
+            product = addProduct(new Food(id, name, price, rating, bestBefore));
         } catch (Exception e) {
             logger.log(Level.INFO,
                     "Error adding product " + e.getMessage());
@@ -111,12 +229,15 @@ public class ProductManager {
 
     public Product createProduct(int id, String name,
                                  BigDecimal price, Rating rating) {
+        if (pipeline != null) {
+            return await(submitProduct(id, name, price, rating),
+                    "Error adding product ");
+        }
         Product product = null;
 
         try {
             writeLock.lock();
-            product = new Drink(id, name, price, rating);
-            products.putIfAbsent(product, new ArrayList<>());
+            product = addProduct(new Drink(id, name, price, rating));
         } catch (Exception e) {
             logger.log(Level.INFO,
                     "Error adding product " + e.getMessage());
@@ -127,59 +248,256 @@ public class ProductManager {
         return product;
     }
 
+    public CompletableFuture<Product> submitProduct(int id, String name,
+                                                    BigDecimal price, Rating rating, LocalDate bestBefore) {
+        return submit(true, () ->
+                addProduct(new Food(id, name, price, rating, bestBefore)));
+    }
+
+    public CompletableFuture<Product> submitProduct(int id, String name,
+                                                    BigDecimal price, Rating rating) {
+        return submit(true, () ->
+                addProduct(new Drink(id, name, price, rating)));
+    }
+
+    /**
+     * Publishes and indexes the product holding its review lock stripe,
+     * so a review arriving once it is published waits until it is
+     * indexed. Reviews take no catalog lock in
+     * {@link CatalogMode#SNAPSHOT} mode.
+     */
+    private Product addProduct(Product product) {
+        Lock reviewLock = reviewLock(product.getId());
+        try {
+            reviewLock.lock();
+            ProductEntry entry = new ProductEntry(product);
+            if (products.putIfAbsent(product.getId(), entry) == null) {
+                index(entry.getProduct());
+            }
+        } finally {
+            reviewLock.unlock();
+        }
+        return product;
+    }
+
+    private void index(Product product) {
+        catalogIndex.add(product);
+        sortedViews.values().forEach(view -> view.add(product));
+    }
+
+    private void clearIndexes() {
+        catalogIndex.clear();
+        sortedViews.values().forEach(SortedView::clear);
+    }
+
+    /**
+     * Adds the products of every spec, or none of them when any spec is
+     * invalid
+     *
+     * @return the products, or {@code null} when the specs were rejected
+     */
+    public List<Product> createProducts(Collection<ProductSpec> specs) {
+        return await(submit(true, () -> addProducts(specs)),
+                "Error adding products ");
+    }
+
+    /**
+     * Validates every spec and builds its product before adding any, so
+     * an invalid spec rejects the whole batch and leaves the catalog
+     * unchanged, then presizes the catalog once for the batch before
+     * adding the products
+     */
+    private List<Product> addProducts(Collection<ProductSpec> specs) throws ProductManagerException {
+        List<Product> batch = new ArrayList<>(specs.size());
+        for (ProductSpec spec : specs) {
+            if (spec == null || spec.name() == null || spec.price() == null
+                    || spec.rating() == null) {
+                throw new ProductManagerException("Invalid product spec " + spec);
+            }
+            batch.add(spec.toProduct());
+        }
+        products.ensureCapacity(products.size() + batch.size());
+        return batch.stream()
+                .map(this::addProduct)
+                .toList();
+    }
+
     public Product reviewProduct(int id, Rating rating, String comments) {
+        if (pipeline != null) {
+            return await(submitReview(id, rating, comments), "");
+        }
         try {
-            writeLock.lock();
-            return reviewProduct(findProduct(id), rating, comments);
+            readLock.lock();
+            return reviewProduct(findEntry(id), rating, comments);
         } catch (ProductManagerException e) {
             logger.log(Level.INFO, e.getMessage());
             return null;
         } finally {
-            writeLock.unlock();
+            readLock.unlock();
+        }
+    }
+
+    public CompletableFuture<Product> submitReview(int id, Rating rating, String comments) {
+        return submit(false, () ->
+                reviewProduct(findEntry(id), rating, comments));
+    }
+
+    /**
+     * Applies a mutation on the writer thread in
+     * {@link IngestionMode#PIPELINE} mode, or on the calling thread
+     * under the catalog lock otherwise
+     *
+     * @param structural whether the mutation adds products to the catalog
+     */
+    private <T> CompletableFuture<T> submit(boolean structural, Callable<T> mutation) {
+        if (pipeline != null) {
+            return pipeline.submit(structural, mutation);
+        }
+        Lock lock = structural ? writeLock : readLock;
+        try {
+            lock.lock();
+            return CompletableFuture.completedFuture(mutation.call());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            lock.unlock();
         }
     }
 
-    private Product reviewProduct(Product product, Rating rating, String comments) {
+    private <T> T await(CompletableFuture<T> result, String error) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            logger.log(Level.INFO, error + e.getCause().getMessage());
+            return null;
+        }
+    }
 
-        List<Review> reviews = products.get(product);
-        products.remove(product, reviews);
+    public List<ReviewOutcome> reviewProducts(Collection<ReviewCommand> commands) {
+        return submit(false, () -> reviewAll(commands)).join();
+    }
 
-        reviews.add(new Review(rating, comments));
+    /**
+     * Groups the commands by product id and applies each product's
+     * reviews holding its lock stripe once.
+     * <br>
+     * Invalid commands are rejected before any review is applied, and a
+     * product whose reviews fail rejects its own commands only.
+     *
+     * @return the outcome of each command, in the order of the commands
+     */
+    private List<ReviewOutcome> reviewAll(Collection<ReviewCommand> commands) {
+        ReviewCommand[] batch = commands.toArray(ReviewCommand[]::new);
+        ReviewOutcome[] outcomes = new ReviewOutcome[batch.length];
+        for (int i = 0; i < batch.length; i++) {
+            if (batch[i] == null || batch[i].rating() == null) {
+                outcomes[i] = new ReviewOutcome(batch[i], null,
+                        new ProductManagerException("Invalid review command " + batch[i]));
+            }
+        }
+        IntStream.range(0, batch.length)
+                .filter(i -> outcomes[i] == null)
+                .boxed()
+                .collect(Collectors.groupingBy(i -> batch[i].id()))
+                .forEach((id, positions) -> {
+                    try {
+                        Product product = reviewProduct(findEntry(id), positions.stream()
+                                .map(i -> new Review(batch[i].rating(), batch[i].comments()))
+                                .toList());
+                        positions.forEach(i ->
+                                outcomes[i] = new ReviewOutcome(batch[i], product, null));
+                    } catch (ProductManagerException e) {
+                        positions.forEach(i ->
+                                outcomes[i] = new ReviewOutcome(batch[i], null, e));
+                    } catch (RuntimeException e) {
+                        ProductManagerException error = new ProductManagerException(
+                                "Error reviewing product " + id + " " + e.getMessage(), e);
+                        positions.forEach(i ->
+                                outcomes[i] = new ReviewOutcome(batch[i], null, error));
+                    }
+                });
+        return List.of(outcomes);
+    }
 
-        product = product.applyRating(
-                Rateable.convert(
-                        (int) Math.round(
-                                reviews.stream()
-                                        .mapToInt(r -> r.rating().ordinal())
-                                        .average()
-                                        .orElse(0))));
+    private Product reviewProduct(ProductEntry entry, Collection<Review> reviews) {
+        Lock reviewLock = reviewLock(entry.getProduct().getId());
+        try {
+            reviewLock.lock();
+            Product previous = entry.getProduct();
+            return reposition(previous, entry.review(reviews));
+        } finally {
+            reviewLock.unlock();
+        }
+    }
 
-        products.put(product, reviews);
+    private Product reviewProduct(ProductEntry entry, Rating rating, String comments) {
+        Lock reviewLock = reviewLock(entry.getProduct().getId());
+        try {
+            reviewLock.lock();
+            Product previous = entry.getProduct();
+            return reposition(previous, entry.review(rating, comments));
+        } finally {
+            reviewLock.unlock();
+        }
+    }
 
+    /**
+     * Moves a re-rated product in the catalog index and every sorted
+     * view, callers hold the product review lock stripe
+     */
+    private Product reposition(Product previous, Product product) {
+        if (previous != product) {
+            catalogIndex.replace(previous, product);
+            sortedViews.values().forEach(view -> view.replace(previous, product));
+        }
         return product;
     }
 
+    private Lock reviewLock(int id) {
+        return reviewLocks[ProductIndex.mix(id) & (REVIEW_LOCK_STRIPES - 1)];
+    }
+
     public void printProductReport(int id, String languageTag, String client) {
         try {
-            readLock.lock();
-            printProductReport(findProduct(id), languageTag, client);
+            printProductReport(snapshot(id), languageTag, client);
         } catch (ProductManagerException e) {
             logger.log(Level.INFO, e.getMessage());
         } catch (IOException e) {
             logger.log(Level.SEVERE,
                     "Error printing product report " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Captures a product and its reviews holding the catalog read lock
+     * and the product review lock stripe only for the copy, so reports
+     * are formatted and written without any lock held
+     */
+    private ProductEntry snapshot(int id) throws ProductManagerException {
+        try {
+            readLock.lock();
+            ProductEntry entry = findEntry(id);
+            Lock reviewLock = reviewLock(id);
+            try {
+                reviewLock.lock();
+                return entry.snapshot();
+            } finally {
+                reviewLock.unlock();
+            }
         } finally {
             readLock.unlock();
         }
     }
 
-    private void printProductReport(Product product, String languageTag, String client) throws IOException {
+    private void printProductReport(ProductEntry entry, String languageTag, String client) throws IOException {
 
         ResourceFormatter formatter = changeLocale(languageTag);
 
-        List<Review> reviews = products.get(product);
+        Product product = entry.getProduct();
 
-        Collections.sort(reviews);
+        ReportCache.Report report = reportCache.get(product.getId(), entry.getVersion(), LocalDate.now(),
+                formatter.locale.toLanguageTag(),
+                () -> formatProductReport(entry, formatter));
 
         Path productFile =
                 reportsFolder.resolve(
@@ -187,51 +505,323 @@ public class ProductManager {
                                 config.getString("report.file"),
                                 product.getId(), client));
 
-        try (PrintWriter out = new PrintWriter(
-                new OutputStreamWriter(
-                        Files.newOutputStream(productFile, StandardOpenOption.CREATE),
-                        StandardCharsets.UTF_8))) {
+        if (reportMode == ReportMode.LINK) {
+            reportStore.link(productFile, report.content(), report.digest());
+        } else {
+            reportStore.write(productFile, report.content());
+        }
+    }
+
+    private byte[] formatProductReport(ProductEntry entry, ResourceFormatter formatter) {
+        ReviewList reviews = entry.getReviews();
+        StringBuilder txt = new StringBuilder();
 
-            out.append(formatter.formatProduct(product)
+        formatter.formatProduct(entry.getProduct(), txt)
+                .append(System.lineSeparator());
+        if (reviews.isEmpty()) {
+            txt.append(formatter.getText("no.reviews")
                     + System.lineSeparator());
-            if (reviews.isEmpty()) {
-                out.append(formatter.getText("no.reviews")
-                        + System.lineSeparator());
-            } else {
-                out.append(reviews.stream()
-                        .map(r -> formatter.formatReview(r)
-                                + System.lineSeparator())
-                        .collect(Collectors.joining()));
-            }
+        } else {
+            reviews.byRating()
+                    .forEach(r -> formatter.formatReview(r, txt)
+                            .append(System.lineSeparator()));
         }
 
+        return txt.toString().getBytes(StandardCharsets.UTF_8);
     }
 
     public void printProducts(Predicate<Product> filter, Comparator<Product> sorter, String languageTag) {
+        try {
+            Writer out = new OutputStreamWriter(System.out, System.out.charset());
+            printProducts(filter, sorter, languageTag, out);
+            out.write(System.lineSeparator());
+            out.flush();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE,
+                    "Error printing products " + e.getMessage(), e);
+        }
+    }
+
+    public void printProducts(Predicate<Product> filter, Comparator<Product> sorter, String languageTag,
+                              OutputStream out) throws IOException {
+        printProducts(filter, sorter, languageTag,
+                new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    public void printProducts(Predicate<Product> filter, Comparator<Product> sorter, String languageTag,
+                              WritableByteChannel out) throws IOException {
+        printProducts(filter, sorter, languageTag,
+                Channels.newWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Streams the listing through a bounded buffer, the catalog is only
+     * locked while the matching products are captured, never while
+     * formatting or writing. The writer is flushed but not closed.
+     */
+    public void printProducts(Predicate<Product> filter, Comparator<Product> sorter, String languageTag,
+                              Writer out) throws IOException {
+        ResourceFormatter formatter = changeLocale(languageTag);
+        Writer buffered = new BufferedWriter(out, OUTPUT_BUFFER_SIZE);
+        for (Product product : listProducts(filter, sorter)) {
+            formatter.formatProduct(product, buffered);
+            buffered.write('\n');
+        }
+        buffered.flush();
+    }
 
+    /**
+     * Registers a sort order maintained as products are added and
+     * reviewed. Listings and pages sorted by the returned comparator
+     * walk the maintained order instead of sorting. A walk lists each
+     * product once, one re-rated while the walk is between its old and
+     * new positions may be left out of it.
+     * <br>
+     * The view receives additions and reviews as soon as it is
+     * registered, but is only walked once filled with the catalog.
+     *
+     * @return the registered comparator
+     */
+    public Comparator<Product> registerSortOrder(String name, Comparator<Product> sorter) {
+        SortedView view = new SortedView(sorter);
         try {
-            readLock.lock();
-            ResourceFormatter formatter =
-                    formatters.getOrDefault(languageTag,
-                            formatters.get("en-GB"));
-            StringBuilder txt = new StringBuilder();
-            products.keySet()
-                    .stream()
-                    .sorted(sorter)
-                    .filter(filter)
-                    .forEach(p -> txt.append(formatter.formatProduct(p) + '\n'));
-
-//            String txt = products.keySet()
-//                .stream()
-//                .sorted(sorter)
-//                .filter(filter)
-//                .map(p -> formatter.formatProduct(p))
-//                .collect(Collectors.joining("\n"));
-
-            System.out.println(txt);
+            writeLock.lock();
+            sortedViews.put(name, view);
+            products.values().forEach(entry -> {
+                Lock reviewLock = reviewLock(entry.getProduct().getId());
+                try {
+                    reviewLock.lock();
+                    view.add(entry.getProduct());
+                } finally {
+                    reviewLock.unlock();
+                }
+            });
+            view.markReady();
         } finally {
-            readLock.unlock();
+            writeLock.unlock();
+        }
+        return sorter;
+    }
+
+    /**
+     * @return the comparator registered under the name, or {@code null}
+     */
+    public Comparator<Product> getSortOrder(String name) {
+        SortedView view = sortedViews.get(name);
+        return (view != null) ? view.getSorter() : null;
+    }
+
+    private SortedView sortedView(Comparator<Product> sorter) {
+        for (SortedView view : sortedViews.values()) {
+            if (view.getSorter() == sorter && view.isReady()) {
+                return view;
+            }
+        }
+        return null;
+    }
+
+    private List<Product> listProducts(Predicate<Product> filter, Comparator<Product> sorter) {
+        Predicate<Product> matcher = matcher(filter);
+        SortedView view = sortedView(sorter);
+        if (view != null) {
+            return read(() -> view.values().filter(matcher).toList());
+        }
+        return read(() ->
+                candidates(filter)
+                        .filter(matcher)
+                        .sorted(sorter)
+                        .toList());
+    }
+
+    /**
+     * Streams the products a filter may match.
+     * <br>
+     * A {@link ProductQuery} is evaluated against the catalog index
+     * bitmaps and, when they narrow it down, only the selected products
+     * are resolved. Any other filter gets every product.
+     */
+    private Stream<Product> candidates(Predicate<Product> filter) {
+        if (filter instanceof ProductQuery query) {
+            int[] ids = catalogIndex.select(query);
+            if (ids != null) {
+                return Arrays.stream(ids)
+                        .mapToObj(products::get)
+                        .filter(Objects::nonNull)
+                        .map(ProductEntry::getProduct);
+            }
+        }
+        return products.values().map(ProductEntry::getProduct);
+    }
+
+    /**
+     * @return the predicate the products are checked with, a
+     * {@link ProductQuery} compiled by the catalog index so it agrees
+     * with the index on the current day
+     */
+    private Predicate<Product> matcher(Predicate<Product> filter) {
+        return (filter instanceof ProductQuery query)
+                ? catalogIndex.compile(query)
+                : filter;
+    }
+
+    /**
+     * Selects one page of the matching products in sorter order.
+     * <br>
+     * Only the first {@code offset + limit} matches are kept, in a bounded
+     * heap, so the full sorted listing is never materialized.
+     *
+     * @param offset number of leading matches to skip
+     * @param limit  maximum number of products to return
+     * @return the products of the page
+     */
+    public List<Product> getProducts(Predicate<Product> filter, Comparator<Product> sorter,
+                                     int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException(
+                    "Invalid page offset " + offset + " limit " + limit);
+        }
+        Predicate<Product> matcher = matcher(filter);
+        SortedView view = sortedView(sorter);
+        if (view != null) {
+            return read(() -> view.values()
+                    .filter(matcher)
+                    .skip(offset)
+                    .limit(limit)
+                    .toList());
+        }
+        int n = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        List<Product> top = read(() -> {
+            TopN<Product> selection = new TopN<>(sorter, n);
+            candidates(filter)
+                    .filter(matcher)
+                    .forEach(selection::offer);
+            return selection.toList();
+        });
+        return (offset >= top.size())
+                ? List.of()
+                : top.subList(offset, top.size());
+    }
+
+    /**
+     * Selects the page of matching products that follows the cursor.
+     * <br>
+     * Products are listed in sorter order, ties broken by id, and the
+     * cursor keeps the last product listed, so each page only selects
+     * the products after it and costs the same however deep it is.
+     * A product that moves in the order between pages, because its
+     * rating changed, may be listed twice or not at all.
+     *
+     * @param cursor the {@link ProductPage#next()} cursor of the previous
+     *               page, or {@code null} for the first page
+     * @param limit  maximum number of products to return
+     * @return the page and the cursor to the next page
+     */
+    public ProductPage getProducts(Predicate<Product> filter, Comparator<Product> sorter,
+                                   ProductPage.Cursor cursor, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Invalid page limit " + limit);
+        }
+        Predicate<Product> matcher = matcher(filter);
+        SortedView view = sortedView(sorter);
+        List<Product> top;
+        if (view != null) {
+            top = read(() -> ((cursor == null) ? view.values() : view.valuesAfter(cursor.last))
+                    .filter(matcher)
+                    .limit(limit + 1L)
+                    .toList());
+        } else {
+            Comparator<Product> order = sorter.thenComparingInt(Product::getId);
+            Predicate<Product> after = (cursor == null)
+                    ? matcher
+                    : matcher.and(product -> order.compare(product, cursor.last) > 0);
+            top = read(() -> {
+                TopN<Product> selection =
+                        new TopN<>(order, (int) Math.min(Integer.MAX_VALUE, limit + 1L));
+                candidates(filter)
+                        .filter(after)
+                        .forEach(selection::offer);
+                return selection.toList();
+            });
         }
+        return (top.size() > limit)
+                ? new ProductPage(top.subList(0, limit), new ProductPage.Cursor(top.get(limit - 1)))
+                : new ProductPage(top, null);
+    }
+
+    /**
+     * Lists the products matching a query in sorter order, the query is
+     * evaluated through the catalog index bitmaps
+     */
+    public List<Product> findProducts(ProductQuery query, Comparator<Product> sorter) {
+        return listProducts(query, sorter);
+    }
+
+    /**
+     * Lists the products rated at least {@code minRating} through the
+     * rating index
+     */
+    public List<Product> findProducts(Rating minRating, Comparator<Product> sorter) {
+        return findProducts(ProductQuery.ratingAtLeast(minRating), sorter);
+    }
+
+    /**
+     * Lists the products of a concrete type through the type index
+     */
+    public List<Product> findProducts(Class<? extends Product> type, Comparator<Product> sorter) {
+        return findProducts(ProductQuery.type(type), sorter);
+    }
+
+    /**
+     * Lists the foods best before a date from {@code from} to {@code to},
+     * both included, through the best before index
+     */
+    public List<Product> findProductsBestBefore(LocalDate from, LocalDate to, Comparator<Product> sorter) {
+        return findProducts(ProductQuery.bestBefore(from, to), sorter);
+    }
+
+    /**
+     * Lists the foods best before today or within the following
+     * {@code days} through the best before index
+     */
+    public List<Product> findProductsExpiring(int days, Comparator<Product> sorter) {
+        LocalDate today = catalogIndex.getToday();
+        return findProductsBestBefore(today, today.plusDays(days), sorter);
+    }
+
+    /**
+     * Lists the products priced from {@code min} to {@code max}, both
+     * included, through the price index
+     */
+    public List<Product> findProductsByPrice(BigDecimal min, BigDecimal max, boolean descending) {
+        return listByPrice(ProductQuery.price(min, max), min, max, descending);
+    }
+
+    /**
+     * Lists the products matching a filter in price order through the
+     * price index
+     */
+    public List<Product> findProductsByPrice(Predicate<Product> filter, boolean descending) {
+        return listByPrice(filter, null, null, descending);
+    }
+
+    /**
+     * Walks the price index in price order, ties broken by id, only
+     * the products sharing the same whole cents are sorted
+     */
+    private List<Product> listByPrice(Predicate<Product> filter, BigDecimal min, BigDecimal max,
+                                      boolean descending) {
+        Comparator<Product> order = Comparator.comparing(Product::getPrice)
+                .thenComparingInt(Product::getId);
+        Comparator<Product> groupOrder = descending ? order.reversed() : order;
+        Predicate<Product> matcher = matcher(filter);
+        return read(() -> catalogIndex.selectByPrice(min, max, descending).stream()
+                .flatMap(group -> Arrays.stream(group)
+                        .mapToObj(products::get)
+                        .filter(Objects::nonNull)
+                        .map(ProductEntry::getProduct)
+                        .filter(matcher)
+                        .sorted(groupOrder))
+                .toList());
     }
 
     private void dumpData() {
@@ -245,8 +835,9 @@ public class ProductManager {
 
             try (ObjectOutputStream out = new ObjectOutputStream(
                     Files.newOutputStream(tempFile, StandardOpenOption.CREATE))) {
-                out.writeObject(products);
-                products = new HashMap<>();
+                out.writeObject(toMap());
+                products.clear();
+                clearIndexes();
             }
         } catch (IOException e) {
             logger.log(Level.SEVERE,
@@ -264,7 +855,7 @@ public class ProductManager {
 
             try (ObjectInputStream in = new ObjectInputStream(
                     Files.newInputStream(tempFile, StandardOpenOption.DELETE_ON_CLOSE))) {
-                products = (HashMap) in.readObject();
+                putAll((Map<Product, List<Review>>) in.readObject());
             }
         } catch (Exception e) {
             logger.log(Level.SEVERE,
@@ -274,19 +865,36 @@ public class ProductManager {
 
     private void loadAllData() {
         try {
-            products = Files.list(dataFolder)
+            putAll(Files.list(dataFolder)
                     .filter(file ->
                             file.getFileName().toString().startsWith("product"))
                     .map(file -> loadProduct(file))
                     .filter(product -> product != null)
                     .collect(Collectors.toMap(product -> product,
-                            product -> loadReviews(product)));
+                            product -> loadReviews(product))));
         } catch (IOException e) {
             logger.log(Level.SEVERE,
                     "Error loading data " + e.getMessage(), e);
         }
     }
 
+    private Map<Product, List<Review>> toMap() {
+        Map<Product, List<Review>> data = new HashMap<>();
+        products.values().forEach(entry ->
+                data.put(entry.getProduct(), new ArrayList<>(entry.getReviews())));
+        return data;
+    }
+
+    private void putAll(Map<Product, List<Review>> data) {
+        products.clear();
+        clearIndexes();
+        data.forEach((product, reviews) -> {
+            ProductEntry entry = new ProductEntry(product, reviews);
+            products.put(product.getId(), entry);
+            index(entry.getProduct());
+        });
+    }
+
     private Product loadProduct(Path file) {
         Product product = null;
         try {
@@ -371,35 +979,79 @@ public class ProductManager {
     }
 
     public Map<String, String> getDiscounts(String languageTag) {
-        try {
-            readLock.lock();
-            ResourceFormatter formatter = changeLocale(languageTag);
-            return products.keySet().stream()
-                    .collect(Collectors.groupingBy(
-                            product -> product.getRating().getStars(),
-                            Collectors.collectingAndThen(
-                                    Collectors.summingDouble(
-                                            product -> product.getDiscount().doubleValue()
-                                    ),
-                                    discount -> formatter.moneyFormat.format(discount)
-                            )
-                    ));
-        } finally {
-            readLock.unlock();
-        }
+        ResourceFormatter formatter = changeLocale(languageTag);
+        Set<Integer> discountedToday = catalogIndex.getDiscountedToday();
+        return read(() ->
+                products.values()
+                        .map(ProductEntry::getProduct)
+                        .collect(Collectors.groupingBy(
+                                product -> product.getRating().getStars(),
+                                Collectors.collectingAndThen(
+                                        Collectors.summingLong(
+                                                product -> formatter.moneyFormat.toUnits(
+                                                        getDiscount(product, discountedToday))
+                                        ),
+                                        discount -> formatter.moneyFormat.format(discount)
+                                )
+                        )));
+    }
 
+    /**
+     * Discounts foods from the precomputed foods discounted today
+     * instead of checking their best before date
+     */
+    private static BigDecimal getDiscount(Product product, Set<Integer> discountedToday) {
+        if (product instanceof Food) {
+            return discountedToday.contains(product.getId())
+                    ? product.getFullDiscount()
+                    : BigDecimal.ZERO;
+        }
+        return product.getDiscount();
     }
 
     public Product findProduct(int id) throws ProductManagerException {
+        return found(id, read(() -> products.get(id))).getProduct();
+    }
+
+    private ProductEntry findEntry(int id) throws ProductManagerException {
+        return found(id, products.get(id));
+    }
+
+    private static ProductEntry found(int id, ProductEntry entry) throws ProductManagerException {
+        if (entry == null) {
+            throw new ProductManagerException(
+                    "Product with id " + id + " not found");
+        }
+        return entry;
+    }
+
+    /**
+     * Runs a side-effect free query against the catalog.
+     * <br>
+     * In {@link CatalogMode#OPTIMISTIC} mode the query first runs
+     * without locking and its result is kept only if no structural change
+     * happened meanwhile, otherwise it is repeated under the read lock.
+     * In {@link CatalogMode#SNAPSHOT} mode the read lock never blocks.
+     */
+    private <T> T read(Supplier<T> query) {
+        if (catalogMode == CatalogMode.OPTIMISTIC) {
+            long stamp = stampedLock.tryOptimisticRead();
+            if (stamp != 0) {
+                try {
+                    T result = query.get();
+                    if (stampedLock.validate(stamp)) {
+                        return result;
+                    }
+                } catch (RuntimeException e) {
+                    if (stampedLock.validate(stamp)) {
+                        throw e;
+                    }
+                }
+            }
+        }
         try {
             readLock.lock();
-            return products.keySet()
-                    .stream()
-                    .filter(p -> p.getId() == id)
-                    .findFirst()
-                    .orElseThrow(() ->
-                            new ProductManagerException(
-                                    "Product with id " + id + " not found"));
+            return query.get();
         } finally {
             readLock.unlock();
         }
@@ -409,7 +1061,11 @@ public class ProductManager {
         private Locale locale;
         private ResourceBundle resources;
         private DateTimeFormatter dateFormat;
-        private NumberFormat moneyFormat;
+        private MoneyFormat moneyFormat;
+        private Template productTemplate;
+        private Template reviewTemplate;
+        private String foodType;
+        private String drinkType;
 
         private ResourceFormatter(Locale locale) {
 
@@ -417,27 +1073,55 @@ public class ProductManager {
 
             resources = ResourceBundle.getBundle("labs.pm.data.resources", locale);
             dateFormat = DateTimeFormatter.ofLocalizedDate(FormatStyle.SHORT).localizedBy(locale);
-            moneyFormat = NumberFormat.getCurrencyInstance(locale);
+            moneyFormat = new MoneyFormat(locale);
+            productTemplate = Template.compile(resources.getString("product"));
+            reviewTemplate = Template.compile(resources.getString("review"));
+            foodType = resources.getString("food");
+            drinkType = resources.getString("drink");
         }
 
-        private String formatProduct(Product product) {
-            String type = switch (product) {
-                case Food food -> resources.getString("food");
-                case Drink drink -> resources.getString("drink");
-            };
+        private StringBuilder formatProduct(Product product, StringBuilder out) {
+            return productTemplate.render(out,
+                    (text, index) -> appendProduct(product, index, text));
+        }
 
-            return MessageFormat.format(resources.getString("product"),
-                    product.getName(),
-                    moneyFormat.format(product.getPrice()),
-                    product.getRating().getStars(),
-                    dateFormat.format(product.getBestBefore()),
-                    type);
+        private void formatProduct(Product product, Appendable out) throws IOException {
+            productTemplate.render(out,
+                    (text, index) -> appendProduct(product, index, text));
         }
 
-        private String formatReview(Review review) {
-            return MessageFormat.format(resources.getString("review"),
-                    review.rating().getStars(),
-                    review.comments());
+        private void appendProduct(Product product, int index, Appendable out) throws IOException {
+            switch (index) {
+                case 0 -> out.append(product.getName());
+                case 1 -> {
+                    long cents = product.getPriceCents();
+                    if (cents != Product.NO_CENTS) {
+                        moneyFormat.format(moneyFormat.centsToUnits(cents), out);
+                    } else {
+                        moneyFormat.format(product.getPrice(), out);
+                    }
+                }
+                case 2 -> out.append(product.getRating().getStars());
+                case 3 -> dateFormat.formatTo(product.getBestBefore(), out);
+                case 4 -> out.append(switch (product) {
+                    case Food food -> foodType;
+                    case Drink drink -> drinkType;
+                });
+                default -> out.append("{" + index + "}");
+            }
+        }
+
+        private StringBuilder formatReview(Review review, StringBuilder out) {
+            return reviewTemplate.render(out,
+                    (text, index) -> appendReview(review, index, text));
+        }
+
+        private void appendReview(Review review, int index, Appendable out) throws IOException {
+            switch (index) {
+                case 0 -> out.append(review.rating().getStars());
+                case 1 -> out.append(review.comments());
+                default -> out.append("{" + index + "}");
+            }
         }
 
         private String getText(String key) {
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2025.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package labs.pm.data;
+
+import java.util.List;
+
+/**
+ * {@code ProductPage} is one page of a product listing.
+ * <br>
+ * The {@link Cursor} continues the listing after the last product of
+ * the page and is {@code null} on the last page.
+ *
+ * @author bilal
+ **/
+public record ProductPage(List<Product> products, Cursor next) {
+
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    /**
+     * {@code Cursor} is an opaque position in a listing, valid for the
+     * same filter and sorter it was returned for.
+     */
+    public static final class Cursor {
+
+        final Product last;
+
+        Cursor(Product last) {
+            this.last = last;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2025.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package labs.pm.data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * {@code ProductQuery} is a product filter built from criteria the
+ * {@link ProductManager} can inspect.
+ * <br>
+ * Queries combine rating, price and best before ranges, concrete type,
+ * name prefix and discounted today criteria with
+ * {@link #and(ProductQuery) and}, {@link #or(ProductQuery) or} and
+ * {@link #negate() negate}. Ranges include both bounds. A query is
+ * a {@link Predicate}, wherever a filter is accepted a query is planned
+ * against the catalog indexes, any other predicate scans the catalog.
+ *
+ * @author bilal
+ **/
+public sealed interface ProductQuery extends Predicate<Product> {
+
+    static ProductQuery rating(Rating min, Rating max) {
+        return new RatingRange(min, max);
+    }
+
+    static ProductQuery ratingAtLeast(Rating min) {
+        return new RatingRange(min, Rating.FIVE_STAR);
+    }
+
+    static ProductQuery price(BigDecimal min, BigDecimal max) {
+        return new PriceRange(min, max);
+    }
+
+    static ProductQuery type(Class<? extends Product> type) {
+        return new TypeIs(type);
+    }
+
+    static ProductQuery bestBefore(LocalDate from, LocalDate to) {
+        return new BestBeforeRange(from, to);
+    }
+
+    static ProductQuery namePrefix(String prefix) {
+        return new NamePrefix(prefix);
+    }
+
+    static ProductQuery discountedToday() {
+        return new DiscountedToday();
+    }
+
+    default ProductQuery and(ProductQuery other) {
+        return new And(List.of(this, other));
+    }
+
+    default ProductQuery or(ProductQuery other) {
+        return new Or(List.of(this, other));
+    }
+
+    default ProductQuery andNot(ProductQuery other) {
+        return and(other.negate());
+    }
+
+    @Override
+    default ProductQuery negate() {
+        return new Not(this);
+    }
+
+    record RatingRange(Rating min, Rating max) implements ProductQuery {
+        @Override
+        public boolean test(Product product) {
+            return product.getRating().compareTo(min) >= 0
+                    && product.getRating().compareTo(max) <= 0;
+        }
+    }
+
+    record PriceRange(BigDecimal min, BigDecimal max) implements ProductQuery {
+        @Override
+        public boolean test(Product product) {
+            return product.getPrice().compareTo(min) >= 0
+                    && product.getPrice().compareTo(max) <= 0;
+        }
+    }
+
+    record TypeIs(Class<? extends Product> type) implements ProductQuery {
+        @Override
+        public boolean test(Product product) {
+            return product.getClass() == type;
+        }
+    }
+
+    /**
+     * Matches foods only, drinks have no best before date
+     */
+    record BestBeforeRange(LocalDate from, LocalDate to) implements ProductQuery {
+        @Override
+        public boolean test(Product product) {
+            return product instanceof Food food
+                    && !food.getBestBefore().isBefore(from)
+                    && !food.getBestBefore().isAfter(to);
+        }
+    }
+
+    /**
+     * Matches the foods discounted for the whole day, those whose best
+     * before date is today. Tested on its own it reads the clock, the
+     * {@link ProductManager} looks products up in the foods discounted
+     * on the current day of its catalog index instead.
+     */
+    record DiscountedToday() implements ProductQuery {
+        @Override
+        public boolean test(Product product) {
+            return product instanceof Food food
+                    && food.getBestBefore().isEqual(LocalDate.now());
+        }
+    }
+
+    record NamePrefix(String prefix) implements ProductQuery {
+        @Override
+        public boolean test(Product product) {
+            return product.getName().startsWith(prefix);
+        }
+    }
+
+    record And(List<ProductQuery> terms) implements ProductQuery {
+        public And {
+            terms = List.copyOf(terms);
+        }
+
+        @Override
+        public boolean test(Product product) {
+            for (ProductQuery term : terms) {
+                if (!term.test(product)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    record Or(List<ProductQuery> terms) implements ProductQuery {
+        public Or {
+            terms = List.copyOf(terms);
+        }
+
+        @Override
+        public boolean test(Product product) {
+            for (ProductQuery term : terms) {
+                if (term.test(product)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    record Not(ProductQuery term) implements ProductQuery {
+        @Override
+        public boolean test(Product product) {
+            return !term.test(product);
+        }
+    }
+}
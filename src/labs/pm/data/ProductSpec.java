@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2025.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package labs.pm.data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * {@code ProductSpec} describes one product of a bulk
+ * {@link ProductManager#createProducts creation} request.
+ * <br>
+ * A spec with a best before date describes a {@link Food},
+ * otherwise a {@link Drink}.
+ *
+ * @author bilal
+ **/
+public record ProductSpec(int id, String name, BigDecimal price,
+                          Rating rating, LocalDate bestBefore) {
+
+    public static ProductSpec food(int id, String name, BigDecimal price,
+                                   Rating rating, LocalDate bestBefore) {
+        return new ProductSpec(id, name, price, rating, bestBefore);
+    }
+
+    public static ProductSpec drink(int id, String name, BigDecimal price,
+                                    Rating rating) {
+        return new ProductSpec(id, name, price, rating, null);
+    }
+
+    Product toProduct() {
+        return (bestBefore == null)
+                ? new Drink(id, name, price, rating)
+                : new Food(id, name, price, rating, bestBefore);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2025.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package labs.pm.data;
+
+import java.util.stream.Stream;
+
+/**
+ * {@code ProductStore} maps product ids to catalog values.
+ * <br>
+ * Mutations are always serialized by the {@link ProductManager}
+ * write lock, implementations differ in what readers need.
+ *
+ * @author bilal
+ **/
+interface ProductStore<V> {
+
+    V get(int id);
+
+    /**
+     * Associates the value with the id, replacing any existing value
+     *
+     * @return the previous value or {@code null}
+     */
+    V put(int id, V value);
+
+    /**
+     * Associates the value with the id unless a value is already present
+     *
+     * @return the existing value or {@code null}
+     */
+    default V putIfAbsent(int id, V value) {
+        V existing = get(id);
+        return (existing != null) ? existing : put(id, value);
+    }
+
+    Stream<V> values();
+
+    /**
+     * Prepares the store to hold the expected number of values
+     * without growing
+     */
+    default void ensureCapacity(int expectedSize) {
+    }
+
+    int size();
+
+    void clear();
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2025.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package labs.pm.data;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * {@code ReportCache} keeps rendered product reports per product and
+ * language.
+ * <br>
+ * Each report remembers the product version it was rendered from, a
+ * review bumps the version, and the day it was rendered on, as reports
+ * show dates and discounts of the current day, so a cached report is
+ * only reused while the product is unchanged on the same day. A report
+ * also keeps the digest naming it in the {@link ReportStore} once
+ * computed. Once the cache is full an arbitrary report is evicted to
+ * make room.
+ *
+ * @author bilal
+ **/
+class ReportCache {
+
+    private record Key(int id, String languageTag) {
+    }
+
+    static final class Report {
+
+        private final int version;
+        private final LocalDate day;
+        private final byte[] content;
+        private String digest;
+
+        private Report(int version, LocalDate day, byte[] content) {
+            this.version = version;
+            this.day = day;
+            this.content = content;
+        }
+
+        byte[] content() {
+            return content;
+        }
+
+        /**
+         * @return the {@link ReportStore#digest(byte[]) digest} of the
+         * content, computed on first use
+         */
+        String digest() {
+            String digest = this.digest;
+            if (digest == null) {
+                digest = ReportStore.digest(content);
+                this.digest = digest;
+            }
+            return digest;
+        }
+
+        private boolean isNewerThan(Report other) {
+            return (version != other.version)
+                    ? version > other.version
+                    : day.isAfter(other.day);
+        }
+    }
+
+    private final ConcurrentMap<Key, Report> reports = new ConcurrentHashMap<>();
+    private final int capacity;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    ReportCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the cached report of this product version rendered on
+     * this day, rendering and caching it when missing or stale
+     */
+    Report get(int id, int version, LocalDate day, String languageTag,
+               Supplier<byte[]> renderer) {
+        Key key = new Key(id, languageTag);
+        Report report = reports.get(key);
+        if (report != null && report.version == version && report.day.isEqual(day)) {
+            hits.increment();
+            return report;
+        }
+        misses.increment();
+        Report rendered = new Report(version, day, renderer.get());
+        if (report == null && reports.size() >= capacity) {
+            evict();
+        }
+        reports.merge(key, rendered,
+                (cached, fresh) -> cached.isNewerThan(fresh) ? cached : fresh);
+        return rendered;
+    }
+
+    ReportCacheStats getStats() {
+        return new ReportCacheStats(hits.sum(), misses.sum(), reports.size(), capacity);
+    }
+
+    private void evict() {
+        Iterator<Key> keys = reports.keySet().iterator();
+        if (keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+}
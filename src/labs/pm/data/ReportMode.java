@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2025.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package labs.pm.data;
+
+/**
+ * {@code ReportMode} selects how {@link ProductManager} writes
+ * product report files.
+ * <br>
+ * The mode is read from the {@code report.mode} configuration
+ * property and can be overridden with the
+ * {@code labs.pm.report.mode} system property.
+ *
+ * @author bilal
+ **/
+public enum ReportMode {
+    /**
+     * Every client report file is written in full
+     */
+    FILE,
+    /**
+     * Each distinct report is written once into a content-addressed
+     * store and client report files link to it, with a hard link or a
+     * symbolic link where hard links are not supported
+     */
+    LINK
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2025.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package labs.pm.data;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * {@code ReportStore} keeps one file per distinct report content,
+ * named after the SHA-256 digest of the content, and links report
+ * files to it.
+ * <br>
+ * Stored files and report links are first created under temporary
+ * names and then atomically moved into place, so concurrent reports
+ * never observe partial files. Links of the same report file are
+ * serialized by a lock stripe selected by the file.
+ * <br>
+ * A stored file only the store still links, once its report files
+ * were relinked to newer content, is deleted: when a report file is
+ * relinked away from it, and in a sweep of the store once it first
+ * links a report. Stored files are counted by their hard links, so once the
+ * store falls back to symbolic links nothing is deleted.
+ *
+ * @author bilal
+ **/
+class ReportStore {
+
+    private static final int LINK_LOCK_STRIPES = 16;
+
+    private final Path folder;
+    private final Lock[] linkLocks =
+            Stream.generate(ReentrantLock::new)
+                    .limit(LINK_LOCK_STRIPES)
+                    .toArray(Lock[]::new);
+    private final ConcurrentMap<Path, Path> links = new ConcurrentHashMap<>();
+    private volatile boolean created;
+    private volatile boolean swept;
+    private volatile boolean symbolic;
+
+    ReportStore(Path folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Stores the report unless an identical one is already stored,
+     * replaces the report file with a link to the stored file and
+     * deletes the file it was linked to if nothing else links it
+     *
+     * @param digest the {@link #digest(byte[]) digest} of the report
+     */
+    void link(Path file, byte[] report, String digest) throws IOException {
+        Lock linkLock = linkLocks[file.hashCode() & (LINK_LOCK_STRIPES - 1)];
+        Path previous;
+        try {
+            linkLock.lock();
+            Path stored = store(report, digest);
+            if (isLinked(file, stored)) {
+                links.put(file, stored);
+                return;
+            }
+            replace(file, stored, report, digest);
+            previous = links.put(file, stored);
+            if (previous == null || previous.equals(stored)) {
+                return;
+            }
+        } finally {
+            linkLock.unlock();
+        }
+        prune(previous);
+    }
+
+    /**
+     * Replaces the report file with a link to the stored file, storing
+     * it again if it was pruned meanwhile
+     */
+    private void replace(Path file, Path stored, byte[] report, String digest) throws IOException {
+        Path link = file.resolveSibling(
+                file.getFileName() + "." + Thread.currentThread().threadId() + ".link");
+        Files.deleteIfExists(link);
+        while (true) {
+            try {
+                Files.createLink(link, stored);
+                break;
+            } catch (NoSuchFileException e) {
+                store(report, digest);
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                symbolic = true;
+                Files.createSymbolicLink(link, stored.toAbsolutePath());
+                break;
+            }
+        }
+        Files.move(link, file, REPLACE_EXISTING, ATOMIC_MOVE);
+        // renaming over a link to the same file leaves the source in place
+        Files.deleteIfExists(link);
+        if (!symbolic && !swept) {
+            swept = true;
+            sweep();
+        }
+    }
+
+    /**
+     * Writes a report file without going through the store, replacing
+     * rather than writing through a link to a stored file
+     */
+    void write(Path file, byte[] report) throws IOException {
+        Path temp = file.resolveSibling(
+                file.getFileName() + "." + Thread.currentThread().threadId() + ".tmp");
+        Files.write(temp, report);
+        Files.move(temp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    private Path store(byte[] report, String digest) throws IOException {
+        if (!created) {
+            Files.createDirectories(folder);
+            created = true;
+        }
+        Path stored = folder.resolve(digest + ".txt");
+        if (Files.notExists(stored)) {
+            Path temp = folder.resolve(
+                    digest + "." + Thread.currentThread().threadId() + ".tmp");
+            Files.write(temp, report);
+            Files.move(temp, stored, REPLACE_EXISTING, ATOMIC_MOVE);
+        }
+        return stored;
+    }
+
+    /**
+     * Deletes the stored files no report file links, those left by
+     * earlier runs included, once hard links proved supported
+     */
+    private void sweep() throws IOException {
+        try (DirectoryStream<Path> stored = Files.newDirectoryStream(folder, "*.txt")) {
+            for (Path file : stored) {
+                prune(file);
+            }
+        }
+    }
+
+    /**
+     * Deletes a stored file linked by nothing but the store. A report
+     * being linked to it meanwhile stores it again.
+     */
+    private void prune(Path stored) throws IOException {
+        if (symbolic) {
+            return;
+        }
+        try {
+            if ((Integer) Files.getAttribute(stored, "unix:nlink") == 1) {
+                Files.deleteIfExists(stored);
+            }
+        } catch (UnsupportedOperationException | IllegalArgumentException
+                 | NoSuchFileException e) {
+            // link counts unavailable or already pruned, keep the file
+        }
+    }
+
+    private static boolean isLinked(Path file, Path stored) throws IOException {
+        try {
+            return Files.isSameFile(file, stored);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the SHA-256 digest of a report, naming its stored file
+     */
+    static String digest(byte[] report) {
+        try {
+            return HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-256").digest(report));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2025.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package labs.pm.data;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * {@code ReviewList} stores the reviews of one product compactly.
+ * <br>
+ * Ratings are packed as {@link Rating} ordinals in a {@code byte[]} and
+ * comments are kept in a parallel array, deduplicated through a small
+ * shared pool, so no {@link Review} object is retained per review.
+ * The list also keeps the running sum of ratings, so the average rating
+ * is updated in constant time as reviews arrive.
+ * <br>
+ * The list is append-only. Each rating ordinal tags a bucket, and
+ * {@link #byRating()} walks the buckets instead of sorting. Since
+ * existing slots never change, a {@link #snapshot()} shares the arrays.
+ *
+ * @author bilal
+ **/
+class ReviewList extends AbstractList<Review> {
+
+    private static final byte[] NO_RATINGS = new byte[0];
+    private static final String[] NO_COMMENTS = new String[0];
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * Lossy pool of recently seen comments, a racing update only
+     * costs a missed deduplication
+     */
+    private static final String[] COMMENTS = new String[1 << 12];
+
+    private static final Rating[] RATINGS = Rating.values();
+
+    private byte[] ratings = NO_RATINGS;
+    private String[] comments = NO_COMMENTS;
+    private int size;
+    private long ratingSum;
+    private int ratingBuckets;
+    private boolean frozen;
+
+    @Override
+    public Review get(int index) {
+        Objects.checkIndex(index, size);
+        return new Review(RATINGS[ratings[index]], comments[index]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(Review review) {
+        add(review.rating(), review.comments());
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Review> reviews) {
+        grow(size + reviews.size());
+        reviews.forEach(this::add);
+        return !reviews.isEmpty();
+    }
+
+    void add(Rating rating, String comment) {
+        if (frozen) {
+            throw new UnsupportedOperationException();
+        }
+        if (size == ratings.length) {
+            grow(size + 1);
+        }
+        ratings[size] = (byte) rating.ordinal();
+        comments[size] = dedup(comment);
+        ratingSum += rating.ordinal();
+        ratingBuckets |= 1 << rating.ordinal();
+        size++;
+        modCount++;
+    }
+
+    /**
+     * Rounds the average of all ratings
+     *
+     * @return the average {@link Rating}, or
+     * {@link Rateable#DEFAULT_RATING} when there are no reviews
+     */
+    Rating getRating() {
+        return Rateable.convert(
+                (size == 0) ? 0 : (int) Math.round((double) ratingSum / size));
+    }
+
+    /**
+     * Captures the current reviews in constant time
+     *
+     * @return a read-only list unaffected by later reviews
+     */
+    ReviewList snapshot() {
+        ReviewList snapshot = new ReviewList();
+        snapshot.ratings = ratings;
+        snapshot.comments = comments;
+        snapshot.size = size;
+        snapshot.ratingSum = ratingSum;
+        snapshot.ratingBuckets = ratingBuckets;
+        snapshot.frozen = true;
+        return snapshot;
+    }
+
+    /**
+     * Streams the reviews in {@link Review} order, highest rating first
+     * and in arrival order within a rating, without sorting or copying
+     */
+    Stream<Review> byRating() {
+        return IntStream.iterate(RATINGS.length - 1, rating -> rating >= 0, rating -> rating - 1)
+                .filter(rating -> (ratingBuckets & (1 << rating)) != 0)
+                .flatMap(rating -> IntStream.range(0, size)
+                        .filter(index -> ratings[index] == rating))
+                .mapToObj(index -> new Review(RATINGS[ratings[index]], comments[index]));
+    }
+
+    private void grow(int minCapacity) {
+        if (minCapacity > ratings.length) {
+            int capacity = Math.max(minCapacity,
+                    Math.max(INITIAL_CAPACITY, ratings.length + (ratings.length >> 1)));
+            ratings = Arrays.copyOf(ratings, capacity);
+            comments = Arrays.copyOf(comments, capacity);
+        }
+    }
+
+    private static String dedup(String comment) {
+        if (comment == null) {
+            return null;
+        }
+        int slot = comment.hashCode() & (COMMENTS.length - 1);
+        String pooled = COMMENTS[slot];
+        if (comment.equals(pooled)) {
+            return pooled;
+        }
+        COMMENTS[slot] = comment;
+        return comment;
+    }
+}
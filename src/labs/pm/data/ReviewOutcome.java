@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2025.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package labs.pm.data;
+
+/**
+ * {@code ReviewOutcome} reports the result of one {@link ReviewCommand}.
+ * <br>
+ * A reviewed command carries the product with the rating computed
+ * after every review of the batch for that product was applied, a
+ * rejected command carries the error instead.
+ *
+ * @author bilal
+ **/
+public record ReviewOutcome(ReviewCommand command, Product product, ProductManagerException error) {
+
+    public boolean isReviewed() {
+        return error == null;
+    }
+}
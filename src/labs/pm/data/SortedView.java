@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2025.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package labs.pm.data;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * {@code SortedView} keeps the catalog products in one registered
+ * sort order, ties broken by id.
+ * <br>
+ * Products live in a concurrent skip list keyed by their position, so
+ * listing is a range walk and a product whose rating changed is moved
+ * in {@code O(log n)}. A product keeps its key while its position does
+ * not change and only the current product is stored against it.
+ * Updates of one product are serialized by its review lock stripe,
+ * readers walk the view without locking. A product being moved is
+ * briefly at both positions, each walk lists it once, at the first
+ * position it reaches, with the version stored there. A walk already
+ * past the new position when the old one is removed lists it nowhere.
+ *
+ * @author bilal
+ **/
+final class SortedView {
+
+    private final Comparator<Product> sorter;
+    private final ConcurrentSkipListMap<Product, Product> products;
+    private volatile boolean ready;
+
+    SortedView(Comparator<Product> sorter) {
+        this.sorter = sorter;
+        this.products = new ConcurrentSkipListMap<>(
+                sorter.thenComparingInt(Product::getId));
+    }
+
+    Comparator<Product> getSorter() {
+        return sorter;
+    }
+
+    /**
+     * Marks the view filled with the whole catalog, until then it only
+     * receives updates and is not walked for listings
+     */
+    void markReady() {
+        ready = true;
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+
+    void add(Product product) {
+        products.put(product, product);
+    }
+
+    /**
+     * Replaces a product with its re-rated version, the new position is
+     * added before the old one is removed, walks reaching both skip the
+     * second
+     */
+    void replace(Product previous, Product product) {
+        if (products.comparator().compare(previous, product) == 0) {
+            products.put(previous, product);
+        } else {
+            products.put(product, product);
+            products.remove(previous);
+        }
+    }
+
+    void clear() {
+        products.clear();
+    }
+
+    Stream<Product> values() {
+        return distinct(products.values().stream());
+    }
+
+    /**
+     * @return the products positioned after the given product
+     */
+    Stream<Product> valuesAfter(Product product) {
+        ConcurrentNavigableMap<Product, Product> tail = products.tailMap(product, false);
+        return distinct(tail.values().stream());
+    }
+
+    /**
+     * Lists each product of a walk once, whatever positions it had
+     * while it was being moved
+     */
+    private static Stream<Product> distinct(Stream<Product> walk) {
+        Set<Integer> listed = new HashSet<>();
+        return walk.filter(product -> listed.add(product.getId()));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2025.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package labs.pm.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@code Template} is a {@link java.text.MessageFormat MessageFormat}
+ * pattern compiled once into literal text and argument references.
+ * <br>
+ * Only plain {@code {n}} arguments and the
+ * {@code MessageFormat} quoting rules are supported. Templates are
+ * immutable and safe to share across threads, and render straight into
+ * an {@link Appendable}, each argument appending its own value, without
+ * an argument array or intermediate strings.
+ *
+ * @author bilal
+ **/
+final class Template {
+
+    /**
+     * Appends the value of argument {@code index} to the output
+     */
+    @FunctionalInterface
+    interface Arguments {
+        void append(Appendable out, int index) throws IOException;
+    }
+
+    private final String[] literals;
+    private final int[] arguments;
+
+    private Template(String[] literals, int[] arguments) {
+        this.literals = literals;
+        this.arguments = arguments;
+    }
+
+    static Template compile(String pattern) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> arguments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '\'') {
+                    literal.append(c);
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == '{' && !quoted) {
+                int end = pattern.indexOf('}', i);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unmatched braces in " + pattern);
+                }
+                try {
+                    arguments.add(Integer.parseInt(pattern.substring(i + 1, end).trim()));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(
+                            "Unsupported argument " + pattern.substring(i, end + 1)
+                                    + " in " + pattern, e);
+                }
+                literals.add(literal.toString());
+                literal.setLength(0);
+                i = end;
+            } else {
+                literal.append(c);
+            }
+        }
+        literals.add(literal.toString());
+        return new Template(literals.toArray(String[]::new),
+                arguments.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Appends the template with each {@code {n}} replaced by what
+     * {@code values} appends for {@code n}
+     */
+    void render(Appendable out, Arguments values) throws IOException {
+        out.append(literals[0]);
+        for (int i = 0; i < arguments.length; i++) {
+            values.append(out, arguments[i]);
+            out.append(literals[i + 1]);
+        }
+    }
+
+    StringBuilder render(StringBuilder out, Arguments values) {
+        try {
+            render((Appendable) out, values);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2025.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package labs.pm.data;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * {@code TopN} keeps the first {@code n} elements offered to it in
+ * the order of a comparator.
+ * <br>
+ * A bounded heap holds the current selection with its last element on
+ * top, so selecting from {@code m} elements costs
+ * {@code O(m log n)} and never sorts or holds all of them.
+ *
+ * @author bilal
+ **/
+final class TopN<T> {
+
+    private final Comparator<? super T> order;
+    private final int n;
+    private final PriorityQueue<T> heap;
+
+    TopN(Comparator<? super T> order, int n) {
+        this.order = order;
+        this.n = n;
+        this.heap = new PriorityQueue<>(order.reversed());
+    }
+
+    void offer(T element) {
+        if (heap.size() < n) {
+            heap.add(element);
+        } else if (n > 0 && order.compare(element, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(element);
+        }
+    }
+
+    /**
+     * @return the selected elements in comparator order
+     */
+    @SuppressWarnings("unchecked")
+    List<T> toList() {
+        Object[] selection = new Object[heap.size()];
+        for (int i = selection.length - 1; i >= 0; i--) {
+            selection[i] = heap.poll();
+        }
+        return (List<T>) Arrays.asList(selection);
+    }
+}